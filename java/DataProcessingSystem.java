@@ -1,3 +1,4 @@
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -16,9 +17,29 @@ public class DataProcessingSystem {
     private final int maxQueueSize;
     
     public DataProcessingSystem(int numWorkerThreads, int maxQueueSize, String outputFileName) {
+        this(numWorkerThreads, maxQueueSize, outputFileName, false);
+    }
+    
+    /**
+     * @param offHeapPayloads true to store queued task payloads off-heap, which
+     *                        keeps large backlogs from growing the Java heap
+     */
+    public DataProcessingSystem(int numWorkerThreads, int maxQueueSize, String outputFileName,
+                                boolean offHeapPayloads) {
+        this(numWorkerThreads, maxQueueSize, outputFileName, offHeapPayloads, null);
+    }
+    
+    /**
+     * @param offHeapPayloads true to store queued task payloads off-heap
+     * @param spillDirectory Directory where tasks beyond maxQueueSize are spilled
+     *                       instead of blocking producers, or null to disable
+     */
+    public DataProcessingSystem(int numWorkerThreads, int maxQueueSize, String outputFileName,
+                                boolean offHeapPayloads, String spillDirectory) {
         this.numWorkerThreads = numWorkerThreads;
         this.maxQueueSize = maxQueueSize;
-        this.taskQueue = new SharedQueue(maxQueueSize);
+        this.taskQueue = new SharedQueue(maxQueueSize, offHeapPayloads,
+                                         spillDirectory == null ? null : new File(spillDirectory));
         this.resultsManager = new ResultsManager(outputFileName);
         this.workers = new ArrayList<>();
         this.executorService = Executors.newFixedThreadPool(numWorkerThreads);
@@ -31,6 +52,8 @@ public class DataProcessingSystem {
         System.out.println("Starting Data Processing System...");
         System.out.println("Number of worker threads: " + numWorkerThreads);
         System.out.println("Maximum queue size: " + maxQueueSize);
+        System.out.println("Off-heap task payloads: " + taskQueue.isOffHeap());
+        System.out.println("Spill to disk on overflow: " + taskQueue.isSpillEnabled());
         System.out.println("=" .repeat(50));
         
         // Create and start worker threads
@@ -114,6 +137,13 @@ public class DataProcessingSystem {
         
         System.out.println("All worker threads completed");
         
+        // Remove any spill segments left behind by unprocessed tasks
+        long discarded = taskQueue.getSpilledCount();
+        if (discarded > 0) {
+            System.err.println("Discarding " + discarded + " spilled tasks that were not processed");
+        }
+        taskQueue.close();
+        
         // Write results to file
         boolean success = resultsManager.writeResultsToFile();
         if (success) {
@@ -150,6 +180,7 @@ public class DataProcessingSystem {
     public void printStatus() {
         System.out.println("\n=== System Status ===");
         System.out.println("Queue size: " + taskQueue.size());
+        System.out.println("Spilled tasks: " + taskQueue.getSpilledCount());
         System.out.println("Queue empty: " + taskQueue.isEmpty());
         System.out.println("Queue shutdown: " + taskQueue.isShutdown());
         System.out.println("Results count: " + resultsManager.getResultCount());
@@ -0,0 +1,860 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator and soak-test harness for the Data Processing System.
+ * Drives the system with an open-loop (fixed arrival rate) or closed-loop
+ * (fixed concurrency) workload and writes a JSON report with throughput,
+ * latency percentiles, GC and allocation statistics, and queue occupancy
+ * sampled over the run.
+ *
+ * Latency is measured from each task's intended send time rather than the
+ * time it was actually enqueued, so stalls in the producer (for example a
+ * blocked addTask on a full queue) are charged to the tasks that should have
+ * been sent during the stall. This corrects for coordinated omission. The
+ * uncorrected enqueue-to-completion latency is reported alongside it. Tasks
+ * still outstanding when the drain timeout expires are recorded at their
+ * elapsed time so far, a lower bound, and reported as censored. So are
+ * open-loop send slots the producer fell too far behind to send before the
+ * end of the load phase.
+ *
+ * Usage: java LoadGenerator [--option=value ...], see {@link #printUsage()}
+ */
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final double MAX_RATE = TimeUnit.SECONDS.toNanos(1);
+
+    private final Config config;
+    private final PrintStream console;
+    private final Map<Integer, PendingTask> pending;
+    private final LatencyHistogram correctedLatencies;
+    private final LatencyHistogram uncorrectedLatencies;
+    private final List<Sample> samples;
+    private final AtomicInteger nextTaskId;
+    private final AtomicLong submitted;
+    private final AtomicLong rejected;
+    private final AtomicLong completed;
+    private final AtomicLong censored;
+    private final AtomicLong unsent;
+    private final AtomicLong exitedThreadAllocatedBytes;
+    private DataProcessingSystem system;
+    private long startNanos;
+    private volatile long unsentFromNanos = Long.MAX_VALUE;
+
+    public LoadGenerator(Config config, PrintStream console) {
+        this.config = config;
+        this.console = console;
+        this.pending = new ConcurrentHashMap<>();
+        this.correctedLatencies = new LatencyHistogram();
+        this.uncorrectedLatencies = new LatencyHistogram();
+        this.samples = new ArrayList<>();
+        this.nextTaskId = new AtomicInteger(1);
+        this.submitted = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.censored = new AtomicLong();
+        this.unsent = new AtomicLong();
+        this.exitedThreadAllocatedBytes = new AtomicLong();
+    }
+
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(1);
+            return;
+        }
+
+        if (config.help) {
+            printUsage();
+            return;
+        }
+
+        PrintStream console = System.out;
+        if (!config.verbose) {
+            // Per-task logging would dominate the measurement; silence it for the run
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        try {
+            new LoadGenerator(config, console).run();
+        } catch (Exception e) {
+            System.err.println("Error in load generator: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Run the configured workload and write the report
+     * @throws InterruptedException if interrupted while driving the system
+     */
+    public void run() throws InterruptedException {
+        console.println("Load generator: " + config.describe());
+
+        system = new DataProcessingSystem(config.workers, config.queueSize, config.outputFile,
+                                          config.offHeap, config.spillDir);
+        system.getResultsManager().setResultListener(this::onResult);
+        system.start();
+
+        Thread sampler = null;
+        List<Thread> producers = new ArrayList<>();
+        try {
+            RuntimeSnapshot before = RuntimeSnapshot.take();
+            startNanos = System.nanoTime();
+            long endNanos = startNanos + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+
+            sampler = newLoadThread("LoadGen-Sampler", this::runSampler);
+            sampler.start();
+
+            if (config.closedLoop) {
+                for (int i = 0; i < config.concurrency; i++) {
+                    int user = i;
+                    producers.add(newLoadThread("LoadGen-User-" + (i + 1), () -> runClosedLoopUser(user, endNanos)));
+                }
+            } else {
+                producers.add(newLoadThread("LoadGen-Producer", () -> runOpenLoop(endNanos)));
+            }
+            for (Thread producer : producers) {
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime());
+                if (remainingMs > 0) {
+                    producer.join(remainingMs);
+                }
+            }
+            // Producers still blocked in addTask give up so the load phase ends on time
+            for (Thread producer : producers) {
+                producer.interrupt();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            long producersDoneNanos = System.nanoTime();
+
+            console.println("Load phase finished, draining " + pending.size() + " outstanding tasks...");
+            long drainDeadline = producersDoneNanos + TimeUnit.SECONDS.toNanos(config.drainTimeoutSeconds);
+            while (!pending.isEmpty() && System.nanoTime() < drainDeadline) {
+                Thread.sleep(10);
+            }
+            long finishNanos = System.nanoTime();
+            censorPending(finishNanos, endNanos);
+
+            sampler.interrupt();
+            sampler.join();
+            takeSample();
+            RuntimeSnapshot after = RuntimeSnapshot.take();
+
+            writeReport(before, after, producersDoneNanos, finishNanos);
+        } finally {
+            if (sampler != null) {
+                sampler.interrupt();
+            }
+            for (Thread producer : producers) {
+                producer.interrupt();
+            }
+            system.shutdown();
+        }
+    }
+
+    /**
+     * Create a daemon load thread whose allocations are added to the total when
+     * it exits, since it is no longer alive when the final snapshot is taken
+     */
+    private Thread newLoadThread(String name, Runnable body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } finally {
+                exitedThreadAllocatedBytes.addAndGet(RuntimeSnapshot.currentThreadAllocatedBytes());
+            }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Sample queue occupancy at a fixed interval until interrupted
+     */
+    private void runSampler() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.sampleIntervalMs);
+        for (long k = 0; ; k++) {
+            sleepUntil(startNanos + k * intervalNanos);
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            takeSample();
+        }
+    }
+
+    /**
+     * Issue tasks on a fixed schedule regardless of how fast they complete
+     */
+    private void runOpenLoop(long endNanos) {
+        Random random = new Random(config.seed);
+        long intervalNanos = openLoopIntervalNanos();
+
+        for (long k = 0; ; k++) {
+            long intended = startNanos + k * intervalNanos;
+            if (intended >= endNanos) {
+                break;
+            }
+            if (System.nanoTime() >= endNanos || Thread.currentThread().isInterrupted()) {
+                // Fell behind schedule; the remaining slots are censored instead of sent late
+                unsentFromNanos = intended;
+                break;
+            }
+            sleepUntil(intended);
+            submit(random, intended, null);
+        }
+    }
+
+    /**
+     * Issue one task at a time, waiting for each to complete before the next.
+     * With a rate configured, each user follows its own schedule of
+     * concurrency/rate seconds between sends.
+     */
+    private void runClosedLoopUser(int user, long endNanos) {
+        Random random = new Random(config.seed + user);
+        Semaphore done = new Semaphore(0);
+        long intervalNanos = config.rate > 0
+            ? (long) (TimeUnit.SECONDS.toNanos(1) * config.concurrency / config.rate)
+            : 0;
+        // Stagger users across one interval so they do not send in lockstep
+        long intended = startNanos + (intervalNanos * user) / config.concurrency;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            if (intervalNanos == 0) {
+                intended = now;
+            }
+            if (intended >= endNanos || now >= endNanos) {
+                break;
+            }
+            sleepUntil(intended);
+
+            if (submit(random, intended, done)) {
+                try {
+                    // A task still outstanding at the end is left to the drain phase in run()
+                    long waitNanos = endNanos - System.nanoTime();
+                    if (waitNanos <= 0 || !done.tryAcquire(waitNanos, TimeUnit.NANOSECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            intended += intervalNanos;
+        }
+    }
+
+    private long openLoopIntervalNanos() {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / config.rate);
+    }
+
+    private boolean submit(Random random, long intendedNanos, Semaphore done) {
+        int id = nextTaskId.getAndIncrement();
+        Task task = new Task(id, config.payload.next(random));
+        PendingTask entry = new PendingTask(intendedNanos, done);
+        pending.put(id, entry);
+        submitted.incrementAndGet();
+
+        entry.enqueueNanos = System.nanoTime();
+        if (!system.getTaskQueue().addTask(task)) {
+            pending.remove(id);
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void onResult(ProcessedResult result) {
+        long now = System.nanoTime();
+        PendingTask entry = pending.remove(result.getTaskId());
+        if (entry == null) {
+            return;
+        }
+
+        correctedLatencies.record(now - entry.intendedNanos);
+        uncorrectedLatencies.record(now - entry.enqueueNanos);
+        completed.incrementAndGet();
+        if (entry.done != null) {
+            entry.done.release();
+        }
+    }
+
+    /**
+     * Record tasks still outstanding at the end of the run at their elapsed
+     * time so far. This is a lower bound on their latency, but leaving them out
+     * would drop the slowest tasks from the percentiles. Open-loop slots that
+     * were never sent are charged the same way.
+     */
+    private void censorPending(long finishNanos, long endNanos) {
+        long intervalNanos = config.closedLoop ? 0 : openLoopIntervalNanos();
+        long slots = 0;
+        for (long intended = unsentFromNanos; intervalNanos > 0 && intended < endNanos; intended += intervalNanos) {
+            correctedLatencies.record(finishNanos - intended);
+            slots++;
+        }
+        unsent.addAndGet(slots);
+
+        for (Integer id : pending.keySet()) {
+            PendingTask entry = pending.remove(id);
+            if (entry == null) {
+                continue;
+            }
+
+            correctedLatencies.record(finishNanos - entry.intendedNanos);
+            uncorrectedLatencies.record(finishNanos - entry.enqueueNanos);
+            censored.incrementAndGet();
+            if (entry.done != null) {
+                entry.done.release();
+            }
+        }
+    }
+
+    private void takeSample() {
+        SharedQueue queue = system.getTaskQueue();
+        Sample sample = new Sample(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+            queue.size(),
+            queue.getSpilledCount(),
+            submitted.get(),
+            completed.get(),
+            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+            RuntimeSnapshot.directMemoryUsed()
+        );
+        synchronized (samples) {
+            samples.add(sample);
+        }
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write the machine-readable JSON report and a short console summary
+     */
+    private void writeReport(RuntimeSnapshot before, RuntimeSnapshot after, long producersDoneNanos, long finishNanos) {
+        double loadSeconds = (producersDoneNanos - startNanos) / 1e9;
+        double totalSeconds = (finishNanos - startNanos) / 1e9;
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"generated_at\": ").append(quote(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))).append(",\n");
+        json.append("  \"java_version\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"config\": ").append(config.toJson()).append(",\n");
+        json.append("  \"duration\": {\"load_seconds\": ").append(format(loadSeconds))
+            .append(", \"total_seconds\": ").append(format(totalSeconds)).append("},\n");
+        json.append("  \"tasks\": {\"submitted\": ").append(submitted.get())
+            .append(", \"rejected\": ").append(rejected.get())
+            .append(", \"completed\": ").append(completed.get())
+            .append(", \"incomplete\": ").append(censored.get())
+            .append(", \"unsent\": ").append(unsent.get())
+            .append(", \"scheduled\": ").append(submitted.get() + unsent.get()).append("},\n");
+        json.append("  \"throughput\": {\"offered_per_second\": ")
+            .append(format((submitted.get() + unsent.get()) / (double) config.durationSeconds))
+            .append(", \"completed_per_second\": ").append(format(completed.get() / totalSeconds)).append("},\n");
+        json.append("  \"latency_ms\": ").append(latencyJson(correctedLatencies, censored.get() + unsent.get())).append(",\n");
+        json.append("  \"uncorrected_latency_ms\": ").append(latencyJson(uncorrectedLatencies, censored.get())).append(",\n");
+        json.append("  \"gc\": ").append(after.gcJson(before)).append(",\n");
+        json.append("  \"memory\": {\"allocated_bytes\": ")
+            .append(before.allocatedBytes < 0 || after.allocatedBytes < 0
+                    ? -1 : after.allocatedBytes - before.allocatedBytes + exitedThreadAllocatedBytes.get())
+            .append(", \"heap_used_bytes_end\": ").append(after.heapUsed)
+            .append(", \"direct_used_bytes_end\": ").append(after.directUsed).append("},\n");
+        json.append("  \"queue_samples\": [");
+        synchronized (samples) {
+            for (int i = 0; i < samples.size(); i++) {
+                json.append(i == 0 ? "\n    " : ",\n    ").append(samples.get(i).toJson());
+            }
+        }
+        json.append("\n  ]\n");
+        json.append("}\n");
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(config.reportFile))) {
+            writer.print(json);
+        } catch (IOException e) {
+            System.err.println("Error writing load report: " + e.getMessage());
+        }
+
+        console.println("=".repeat(50));
+        console.println("Submitted: " + submitted.get() + ", rejected: " + rejected.get() +
+                        ", completed: " + completed.get() + ", incomplete: " + censored.get() +
+                        ", unsent: " + unsent.get());
+        console.println("Throughput: " + format(completed.get() / totalSeconds) + " tasks/s");
+        console.println("Latency p50/p99/max: " + format(correctedLatencies.valueAtPercentile(50) / 1e6) + " / " +
+                        format(correctedLatencies.valueAtPercentile(99) / 1e6) + " / " +
+                        format(correctedLatencies.getMax() / 1e6) + " ms");
+        console.println("Report written to: " + config.reportFile);
+    }
+
+    private static String latencyJson(LatencyHistogram histogram, long censoredCount) {
+        StringBuilder json = new StringBuilder("{\"count\": ").append(histogram.getCount())
+            .append(", \"censored\": ").append(censoredCount);
+        if (histogram.getCount() > 0) {
+            json.append(", \"min\": ").append(format(histogram.getMin() / 1e6))
+                .append(", \"mean\": ").append(format(histogram.getMean() / 1e6));
+            for (double percentile : PERCENTILES) {
+                json.append(", \"p").append(String.valueOf(percentile).replace(".0", "").replace('.', '_'))
+                    .append("\": ").append(format(histogram.valueAtPercentile(percentile) / 1e6));
+            }
+            json.append(", \"max\": ").append(format(histogram.getMax() / 1e6));
+        }
+        return json.append("}").toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java LoadGenerator [options]");
+        System.out.println("  --mode=open|closed        Open-loop fixed arrival rate or closed-loop fixed concurrency (default open)");
+        System.out.println("  --rate=N                  Target tasks per second; 0 in closed mode sends back-to-back (default 20)");
+        System.out.println("  --concurrency=N           Closed-loop users, each with one task in flight (default 8)");
+        System.out.println("  --payload=SPEC            fixed:N, uniform:MIN:MAX or exponential:MEAN chars (default fixed:64)");
+        System.out.println("  --workers=N               Worker threads (default 4)");
+        System.out.println("  --queue-size=N            Maximum in-memory queue size (default 100)");
+        System.out.println("  --off-heap                Store queued payloads off-heap");
+        System.out.println("  --spill-dir=PATH          Spill overflow tasks to disk instead of blocking");
+        System.out.println("  --duration=SECONDS        Length of the load phase (default 60)");
+        System.out.println("  --drain-timeout=SECONDS   Time allowed for outstanding tasks after the load phase (default 30)");
+        System.out.println("  --sample-interval-ms=N    Queue occupancy sampling interval (default 1000)");
+        System.out.println("  --seed=N                  Random seed for payload generation (default 42)");
+        System.out.println("  --output=FILE             Processing results file (default loadgen_results.txt)");
+        System.out.println("  --report=FILE             JSON report file (default loadgen_report.json)");
+        System.out.println("  --verbose                 Keep the system's per-task console logging");
+    }
+
+    /**
+     * Load generator configuration parsed from --option=value arguments
+     */
+    public static class Config {
+        private boolean closedLoop = false;
+        private double rate = 20;
+        private int concurrency = 8;
+        private PayloadDistribution payload = PayloadDistribution.parse("fixed:64");
+        private int workers = 4;
+        private int queueSize = 100;
+        private boolean offHeap = false;
+        private String spillDir = null;
+        private long durationSeconds = 60;
+        private long drainTimeoutSeconds = 30;
+        private long sampleIntervalMs = 1000;
+        private long seed = 42;
+        private String outputFile = "loadgen_results.txt";
+        private String reportFile = "loadgen_report.json";
+        private boolean verbose = false;
+        private boolean help = false;
+
+        /**
+         * Parse command line arguments
+         * @param args The arguments
+         * @return The parsed configuration
+         * @throws IllegalArgumentException if an argument is unknown or invalid
+         */
+        public static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                String key = eq < 0 ? arg : arg.substring(0, eq);
+                String value = eq < 0 ? null : arg.substring(eq + 1);
+                try {
+                    switch (key) {
+                        case "--mode":
+                            if (!"open".equals(value) && !"closed".equals(value)) {
+                                throw new IllegalArgumentException("Mode must be open or closed");
+                            }
+                            config.closedLoop = "closed".equals(value);
+                            break;
+                        case "--rate": config.rate = Double.parseDouble(value); break;
+                        case "--concurrency": config.concurrency = Integer.parseInt(value); break;
+                        case "--payload": config.payload = PayloadDistribution.parse(value); break;
+                        case "--workers": config.workers = Integer.parseInt(value); break;
+                        case "--queue-size": config.queueSize = Integer.parseInt(value); break;
+                        case "--off-heap": config.offHeap = true; break;
+                        case "--spill-dir": config.spillDir = requireValue(key, value); break;
+                        case "--duration": config.durationSeconds = Long.parseLong(value); break;
+                        case "--drain-timeout": config.drainTimeoutSeconds = Long.parseLong(value); break;
+                        case "--sample-interval-ms": config.sampleIntervalMs = Long.parseLong(value); break;
+                        case "--seed": config.seed = Long.parseLong(value); break;
+                        case "--output": config.outputFile = requireValue(key, value); break;
+                        case "--report": config.reportFile = requireValue(key, value); break;
+                        case "--verbose": config.verbose = true; break;
+                        case "--help": config.help = true; break;
+                        default: throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                } catch (NumberFormatException | NullPointerException e) {
+                    throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+                }
+            }
+
+            if (config.rate < 0 || (!config.closedLoop && config.rate == 0)) {
+                throw new IllegalArgumentException("Rate must be positive in open-loop mode");
+            }
+            if (config.rate > MAX_RATE) {
+                throw new IllegalArgumentException("Rate cannot exceed " + (long) MAX_RATE + " tasks per second");
+            }
+            if (config.concurrency <= 0 || config.workers <= 0 || config.queueSize <= 0) {
+                throw new IllegalArgumentException("Concurrency, workers and queue size must be positive");
+            }
+            if (config.durationSeconds <= 0 || config.drainTimeoutSeconds < 0 || config.sampleIntervalMs <= 0) {
+                throw new IllegalArgumentException("Duration and sample interval must be positive");
+            }
+            return config;
+        }
+
+        private static String requireValue(String key, String value) {
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Missing value for " + key);
+            }
+            return value;
+        }
+
+        String describe() {
+            return (closedLoop ? "closed-loop, concurrency " + concurrency : "open-loop") +
+                   ", rate " + rate + "/s, payload " + payload + ", " + workers + " workers, queue " + queueSize +
+                   (offHeap ? ", off-heap" : "") + (spillDir != null ? ", spill to " + spillDir : "") +
+                   ", " + durationSeconds + "s";
+        }
+
+        String toJson() {
+            return "{\"mode\": " + quote(closedLoop ? "closed" : "open") +
+                   ", \"rate\": " + format(rate) +
+                   ", \"concurrency\": " + concurrency +
+                   ", \"payload\": " + quote(payload.toString()) +
+                   ", \"workers\": " + workers +
+                   ", \"queue_size\": " + queueSize +
+                   ", \"off_heap\": " + offHeap +
+                   ", \"spill_dir\": " + quote(spillDir) +
+                   ", \"duration_seconds\": " + durationSeconds +
+                   ", \"drain_timeout_seconds\": " + drainTimeoutSeconds +
+                   ", \"sample_interval_ms\": " + sampleIntervalMs +
+                   ", \"seed\": " + seed + "}";
+        }
+    }
+
+    /**
+     * Payload size distribution in characters
+     */
+    static class PayloadDistribution {
+        private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789_";
+
+        private final String spec;
+        private final String kind;
+        private final int first;
+        private final int second;
+
+        private PayloadDistribution(String spec, String kind, int first, int second) {
+            this.spec = spec;
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+        }
+
+        static PayloadDistribution parse(String spec) {
+            String[] parts = spec.split(":");
+            switch (parts[0]) {
+                case "fixed":
+                    if (parts.length == 2) {
+                        return new PayloadDistribution(spec, parts[0], nonNegative(parts[1]), 0);
+                    }
+                    break;
+                case "uniform":
+                    if (parts.length == 3) {
+                        int min = nonNegative(parts[1]);
+                        int max = nonNegative(parts[2]);
+                        if (min <= max) {
+                            return new PayloadDistribution(spec, parts[0], min, max);
+                        }
+                    }
+                    break;
+                case "exponential":
+                    if (parts.length == 2) {
+                        return new PayloadDistribution(spec, parts[0], nonNegative(parts[1]), 0);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw new IllegalArgumentException("Invalid payload distribution: " + spec);
+        }
+
+        private static int nonNegative(String value) {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException("Payload size cannot be negative: " + value);
+            }
+            return parsed;
+        }
+
+        int nextSize(Random random) {
+            switch (kind) {
+                case "uniform":
+                    return first + random.nextInt(second - first + 1);
+                case "exponential":
+                    return (int) Math.min(Integer.MAX_VALUE / 2, Math.round(-first * Math.log(1 - random.nextDouble())));
+                default:
+                    return first;
+            }
+        }
+
+        String next(Random random) {
+            char[] chars = new char[nextSize(random)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    /**
+     * Bookkeeping for a submitted task awaiting completion
+     */
+    private static class PendingTask {
+        private final long intendedNanos;
+        private final Semaphore done;
+        private volatile long enqueueNanos;
+
+        PendingTask(long intendedNanos, Semaphore done) {
+            this.intendedNanos = intendedNanos;
+            this.done = done;
+            this.enqueueNanos = intendedNanos;
+        }
+    }
+
+    /**
+     * Thread-safe fixed-size latency histogram in nanoseconds. Values are
+     * counted in log-linear buckets (64 per power of two, as in HdrHistogram),
+     * so memory stays constant over a soak run and percentiles are reported to
+     * within about 1.6%. Min, max and mean are exact.
+     */
+    private static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 7;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+        private final long[] counts = new long[(Long.SIZE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS];
+        private long count = 0;
+        private long sum = 0;
+        private long min = Long.MAX_VALUE;
+        private long max = 0;
+
+        synchronized void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            counts[bucketIndex(value)]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        synchronized long getMax() {
+            return max;
+        }
+
+        synchronized double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Get the value at a percentile, reported as the highest value in its bucket
+         * @param percentile Percentile between 0 and 100
+         * @return Latency in nanoseconds
+         */
+        synchronized long valueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalentValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static int bucketIndex(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+            return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        private static long highestEquivalentValue(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / HALF_SUB_BUCKETS - 1;
+            long top = index - (long) shift * HALF_SUB_BUCKETS;
+            return ((top + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * Queue occupancy and progress at a point in time
+     */
+    private static class Sample {
+        private final long elapsedMs;
+        private final int queueSize;
+        private final long spilled;
+        private final long submitted;
+        private final long completed;
+        private final long heapUsed;
+        private final long directUsed;
+
+        Sample(long elapsedMs, int queueSize, long spilled, long submitted, long completed,
+               long heapUsed, long directUsed) {
+            this.elapsedMs = elapsedMs;
+            this.queueSize = queueSize;
+            this.spilled = spilled;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.heapUsed = heapUsed;
+            this.directUsed = directUsed;
+        }
+
+        String toJson() {
+            return "{\"elapsed_ms\": " + elapsedMs + ", \"queue_size\": " + queueSize +
+                   ", \"spilled\": " + spilled + ", \"submitted\": " + submitted +
+                   ", \"completed\": " + completed + ", \"heap_used_bytes\": " + heapUsed +
+                   ", \"direct_used_bytes\": " + directUsed + "}";
+        }
+    }
+
+    /**
+     * GC, allocation and memory counters captured at one instant
+     */
+    private static class RuntimeSnapshot {
+        private final Map<String, long[]> collectors = new LinkedHashMap<>();
+        private long allocatedBytes = -1;
+        private long heapUsed;
+        private long directUsed;
+
+        static RuntimeSnapshot take() {
+            RuntimeSnapshot snapshot = new RuntimeSnapshot();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.collectors.put(gc.getName(), new long[] {gc.getCollectionCount(), gc.getCollectionTime()});
+            }
+
+            // Allocation counters only cover live threads; see newLoadThread
+            com.sun.management.ThreadMXBean hotspot = allocationCounters();
+            if (hotspot != null) {
+                long total = 0;
+                for (long bytes : hotspot.getThreadAllocatedBytes(hotspot.getAllThreadIds())) {
+                    total += Math.max(bytes, 0);
+                }
+                snapshot.allocatedBytes = total;
+            }
+
+            snapshot.heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            snapshot.directUsed = directMemoryUsed();
+            return snapshot;
+        }
+
+        static long currentThreadAllocatedBytes() {
+            com.sun.management.ThreadMXBean hotspot = allocationCounters();
+            return hotspot == null ? 0 : Math.max(hotspot.getThreadAllocatedBytes(Thread.currentThread().getId()), 0);
+        }
+
+        /**
+         * Get the HotSpot thread allocation counters, or null if unavailable
+         */
+        private static com.sun.management.ThreadMXBean allocationCounters() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+                if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                    return hotspot;
+                }
+            }
+            return null;
+        }
+
+        static long directMemoryUsed() {
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if ("direct".equals(pool.getName())) {
+                    return pool.getMemoryUsed();
+                }
+            }
+            return -1;
+        }
+
+        String gcJson(RuntimeSnapshot before) {
+            StringBuilder json = new StringBuilder("{");
+            long totalCount = 0;
+            long totalTime = 0;
+            for (Map.Entry<String, long[]> entry : collectors.entrySet()) {
+                long[] start = before.collectors.getOrDefault(entry.getKey(), new long[] {0, 0});
+                long count = entry.getValue()[0] - start[0];
+                long time = entry.getValue()[1] - start[1];
+                totalCount += count;
+                totalTime += time;
+                json.append(quote(entry.getKey())).append(": {\"collections\": ").append(count)
+                    .append(", \"time_ms\": ").append(time).append("}, ");
+            }
+            return json.append("\"total\": {\"collections\": ").append(totalCount)
+                .append(", \"time_ms\": ").append(totalTime).append("}}").toString();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stores task payloads in direct (off-heap) ByteBuffer slabs and hands out
+ * compact long handles. Each payload is written as a length prefix followed by
+ * its UTF-8 bytes. A slab is recycled once every payload written into it has
+ * been released, so a FIFO consumer keeps the slab count bounded by the
+ * backlog size. Only a few empty slabs are pooled for reuse; the rest are
+ * dropped so their direct memory can be reclaimed after a burst drains.
+ * Not thread-safe; callers must provide their own locking.
+ */
+public class OffHeapPayloadStore {
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+    private static final int LENGTH_PREFIX = Integer.BYTES;
+    private static final int NULL_LENGTH = -1;
+    private static final int MAX_FREE_SLABS = 2;
+
+    private final int slabSize;
+    private final List<ByteBuffer> slabs;
+    private final List<Integer> liveCounts;
+    private final Deque<Integer> freeSlabs;
+    private final Deque<Integer> freeIndices;
+    private int currentSlab = -1;
+
+    public OffHeapPayloadStore() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    public OffHeapPayloadStore(int slabSize) {
+        if (slabSize <= LENGTH_PREFIX) {
+            throw new IllegalArgumentException("Slab size must be greater than " + LENGTH_PREFIX);
+        }
+        this.slabSize = slabSize;
+        this.slabs = new ArrayList<>();
+        this.liveCounts = new ArrayList<>();
+        this.freeSlabs = new ArrayDeque<>();
+        this.freeIndices = new ArrayDeque<>();
+    }
+
+    /**
+     * Copy a payload into off-heap memory
+     * @param data The payload to store, may be null
+     * @return Handle used to read or release the payload
+     */
+    public long write(String data) {
+        byte[] bytes = data == null ? new byte[0] : data.getBytes(StandardCharsets.UTF_8);
+        int required = LENGTH_PREFIX + bytes.length;
+
+        int slabIndex;
+        if (required > slabSize) {
+            // Oversized payloads get a dedicated buffer that is dropped on release
+            slabIndex = allocateSlab(required);
+        } else {
+            if (currentSlab < 0 || slabs.get(currentSlab).remaining() < required) {
+                retireCurrentSlab();
+                currentSlab = freeSlabs.isEmpty() ? allocateSlab(slabSize) : freeSlabs.pop();
+            }
+            slabIndex = currentSlab;
+        }
+
+        ByteBuffer slab = slabs.get(slabIndex);
+        int offset = slab.position();
+        slab.putInt(data == null ? NULL_LENGTH : bytes.length);
+        slab.put(bytes);
+        liveCounts.set(slabIndex, liveCounts.get(slabIndex) + 1);
+
+        return ((long) slabIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Materialize a payload back onto the heap
+     * @param handle Handle returned by {@link #write(String)}
+     * @return The stored payload
+     */
+    public String read(long handle) {
+        ByteBuffer slab = slabs.get(slabIndex(handle));
+        int offset = offset(handle);
+        int length = slab.getInt(offset);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        slab.get(offset + LENGTH_PREFIX, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Release a payload so its slab can be reused
+     * @param handle Handle returned by {@link #write(String)}
+     */
+    public void release(long handle) {
+        int slabIndex = slabIndex(handle);
+        int live = liveCounts.get(slabIndex) - 1;
+        liveCounts.set(slabIndex, live);
+
+        if (live == 0 && slabIndex != currentSlab) {
+            recycleSlab(slabIndex);
+        }
+    }
+
+    /**
+     * Get the total off-heap capacity currently reserved
+     * @return Reserved bytes
+     */
+    public long getReservedBytes() {
+        long total = 0;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                total += slab.capacity();
+            }
+        }
+        return total;
+    }
+
+    private int allocateSlab(int capacity) {
+        ByteBuffer slab = ByteBuffer.allocateDirect(capacity);
+        if (!freeIndices.isEmpty()) {
+            int index = freeIndices.pop();
+            slabs.set(index, slab);
+            liveCounts.set(index, 0);
+            return index;
+        }
+        slabs.add(slab);
+        liveCounts.add(0);
+        return slabs.size() - 1;
+    }
+
+    private void retireCurrentSlab() {
+        if (currentSlab >= 0) {
+            int retired = currentSlab;
+            currentSlab = -1;
+            if (liveCounts.get(retired) == 0) {
+                recycleSlab(retired);
+            }
+        }
+    }
+
+    private void recycleSlab(int slabIndex) {
+        ByteBuffer slab = slabs.get(slabIndex);
+        if (slab.capacity() == slabSize && freeSlabs.size() < MAX_FREE_SLABS) {
+            slab.clear();
+            freeSlabs.push(slabIndex);
+        } else {
+            slabs.set(slabIndex, null);
+            freeIndices.push(slabIndex);
+        }
+    }
+
+    private static int slabIndex(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO task queue that keeps only primitive handles on the heap. Task ids and
+ * timestamps live in parallel ring-buffer arrays and payloads are copied into
+ * an {@link OffHeapPayloadStore}, so a deep backlog adds no per-task objects
+ * for the garbage collector to trace. A Task is materialized only when it is
+ * polled. The ring buffers shrink again as the backlog drains. Not
+ * thread-safe; {@link SharedQueue} guards it with its lock.
+ */
+public class OffHeapTaskQueue extends AbstractQueue<Task> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final OffHeapPayloadStore payloads;
+    private int[] ids;
+    private long[] timestamps;
+    private long[] handles;
+    private int head = 0;
+    private int count = 0;
+
+    public OffHeapTaskQueue() {
+        this(new OffHeapPayloadStore());
+    }
+
+    public OffHeapTaskQueue(OffHeapPayloadStore payloads) {
+        this.payloads = payloads;
+        this.ids = new int[INITIAL_CAPACITY];
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.handles = new long[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean offer(Task task) {
+        if (task == null) {
+            throw new NullPointerException("Task cannot be null");
+        }
+        if (count == ids.length) {
+            resize(ids.length * 2);
+        }
+
+        int tail = (head + count) % ids.length;
+        ids[tail] = task.getId();
+        timestamps[tail] = task.getTimestamp();
+        handles[tail] = payloads.write(task.getData());
+        count++;
+        return true;
+    }
+
+    @Override
+    public Task poll() {
+        if (count == 0) {
+            return null;
+        }
+
+        Task task = materialize(head);
+        payloads.release(handles[head]);
+        head = (head + 1) % ids.length;
+        count--;
+        if (ids.length > INITIAL_CAPACITY && count <= ids.length / 4) {
+            resize(ids.length / 2);
+        }
+        return task;
+    }
+
+    @Override
+    public Task peek() {
+        return count == 0 ? null : materialize(head);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the off-heap payload store backing this queue
+     * @return The payload store
+     */
+    public OffHeapPayloadStore getPayloadStore() {
+        return payloads;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<Task>() {
+            private int visited = 0;
+
+            @Override
+            public boolean hasNext() {
+                return visited < count;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return materialize((head + visited++) % ids.length);
+            }
+        };
+    }
+
+    private Task materialize(int slot) {
+        return new Task(ids[slot], payloads.read(handles[slot]), timestamps[slot]);
+    }
+
+    private void resize(int newCapacity) {
+        int[] newIds = new int[newCapacity];
+        long[] newTimestamps = new long[newCapacity];
+        long[] newHandles = new long[newCapacity];
+
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) % ids.length;
+            newIds[i] = ids[slot];
+            newTimestamps[i] = timestamps[slot];
+            newHandles[i] = handles[slot];
+        }
+
+        ids = newIds;
+        timestamps = newTimestamps;
+        handles = newHandles;
+        head = 0;
+    }
+}
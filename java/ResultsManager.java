@@ -4,6 +4,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -15,6 +16,7 @@ public class ResultsManager {
     private final ReentrantLock lock;
     private final String outputFileName;
     private final DateTimeFormatter formatter;
+    private volatile Consumer<ProcessedResult> resultListener;
     
     public ResultsManager(String outputFileName) {
         this.results = new ArrayList<>();
@@ -39,6 +41,19 @@ public class ResultsManager {
         } finally {
             lock.unlock();
         }
+        
+        Consumer<ProcessedResult> listener = resultListener;
+        if (listener != null) {
+            listener.accept(result);
+        }
+    }
+    
+    /**
+     * Register a callback invoked on the worker thread after each result is added
+     * @param listener The callback, or null to remove it
+     */
+    public void setResultListener(Consumer<ProcessedResult> listener) {
+        this.resultListener = listener;
     }
     
     /**
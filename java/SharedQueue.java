@@ -1,22 +1,58 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Thread-safe shared queue implementation using ReentrantLock and Condition
+ * Thread-safe shared queue implementation using ReentrantLock and Condition.
+ * By default producers block while the queue holds maxSize tasks. When a spill
+ * directory is configured, tasks beyond maxSize are appended to a segmented
+ * on-disk {@link SpillLog} instead and read back in order as the in-memory
+ * queue drains, so producers never block. Disk I/O runs under a separate
+ * spill lock so it never holds up threads using the in-memory queue.
  */
 public class SharedQueue {
+    private static final int REFILL_BATCH_SIZE = 128;
+    
     private final Queue<Task> queue;
     private final ReentrantLock lock;
     private final Condition notEmpty;
     private final Condition notFull;
     private final int maxSize;
+    private final SpillLog spillLog;
+    private final ReentrantLock spillLock;
+    private long spilledCount = 0;
+    private long spillAppends = 0;
+    private boolean refilling = false;
     private volatile boolean shutdown = false;
     
     public SharedQueue(int maxSize) {
+        this(maxSize, false);
+    }
+    
+    /**
+     * @param maxSize Maximum number of queued tasks
+     * @param offHeapPayloads true to keep task payloads in off-heap memory
+     */
+    public SharedQueue(int maxSize, boolean offHeapPayloads) {
+        this(maxSize, offHeapPayloads, null);
+    }
+    
+    /**
+     * @param maxSize Maximum number of tasks held in memory
+     * @param offHeapPayloads true to keep task payloads in off-heap memory
+     * @param spillDirectory Directory for overflow segments, or null to block
+     *                       producers when the queue is full
+     */
+    public SharedQueue(int maxSize, boolean offHeapPayloads, File spillDirectory) {
         this.maxSize = maxSize;
-        this.queue = new LinkedList<>();
+        this.queue = offHeapPayloads ? new OffHeapTaskQueue() : new LinkedList<>();
+        this.spillLog = spillDirectory == null ? null : new SpillLog(spillDirectory);
+        this.spillLock = new ReentrantLock();
         this.lock = new ReentrantLock();
         this.notEmpty = lock.newCondition();
         this.notFull = lock.newCondition();
@@ -25,7 +61,8 @@ public class SharedQueue {
     /**
      * Add a task to the queue
      * @param task The task to add
-     * @return true if added successfully, false if queue is full or shutdown
+     * @return true if added successfully, false if queue is full or shutdown,
+     *         or if the task could not be spilled to disk
      */
     public boolean addTask(Task task) {
         if (task == null) {
@@ -34,6 +71,10 @@ public class SharedQueue {
         
         lock.lock();
         try {
+            if (spillLog != null) {
+                return addOrSpill(task);
+            }
+            
             while (queue.size() >= maxSize && !shutdown) {
                 try {
                     notFull.await();
@@ -62,7 +103,18 @@ public class SharedQueue {
     public Task getTask() {
         lock.lock();
         try {
-            while (queue.isEmpty() && !shutdown) {
+            while (queue.isEmpty()) {
+                if (spilledCount > 0 && !refilling) {
+                    long appendsBefore = spillAppends;
+                    if (refillFromSpill() || spillAppends != appendsBefore) {
+                        continue;
+                    }
+                }
+                
+                if (shutdown && spilledCount == 0) {
+                    return null;
+                }
+                
                 try {
                     notEmpty.await();
                 } catch (InterruptedException e) {
@@ -71,11 +123,10 @@ public class SharedQueue {
                 }
             }
             
-            if (queue.isEmpty() && shutdown) {
-                return null;
-            }
-            
             Task task = queue.poll();
+            if (queue.size() <= maxSize / 2) {
+                refillFromSpill();
+            }
             notFull.signal();
             return task;
         } finally {
@@ -83,6 +134,99 @@ public class SharedQueue {
         }
     }
     
+    /**
+     * Enqueue in memory while there is room and nothing is spilled, otherwise
+     * append to the spill log so FIFO order is preserved. Caller holds the lock,
+     * which is released while the task is written to disk.
+     */
+    private boolean addOrSpill(Task task) {
+        if (shutdown) {
+            return false;
+        }
+        
+        if (queue.size() < maxSize && spilledCount == 0) {
+            queue.offer(task);
+            notEmpty.signal();
+            return true;
+        }
+        
+        // Count the task before releasing the lock so later tasks queue up behind it
+        spilledCount++;
+        boolean appended = false;
+        lock.unlock();
+        try {
+            spillLock.lock();
+            try {
+                spillLog.append(task);
+                appended = true;
+            } catch (IOException e) {
+                System.err.println("Error spilling task " + task.getId() + " to disk: " + e.getMessage());
+            } finally {
+                spillLock.unlock();
+            }
+        } finally {
+            lock.lock();
+        }
+        
+        if (!appended) {
+            // Workers may be waiting on this task; let them re-check the count
+            spilledCount--;
+            notEmpty.signalAll();
+            return false;
+        }
+        
+        spillAppends++;
+        notEmpty.signal();
+        return true;
+    }
+    
+    /**
+     * Move a batch of spilled tasks back into memory. Only one thread refills
+     * at a time, and at most REFILL_BATCH_SIZE records are read per call.
+     * Caller holds the lock, which is released while reading from disk.
+     * @return true if tasks were moved or discarded, false otherwise
+     */
+    private boolean refillFromSpill() {
+        int room = Math.min(maxSize - queue.size(), REFILL_BATCH_SIZE);
+        if (spillLog == null || spilledCount == 0 || refilling || room <= 0) {
+            return false;
+        }
+        
+        refilling = true;
+        List<Task> batch = new ArrayList<>(room);
+        long discarded = 0;
+        lock.unlock();
+        try {
+            spillLock.lock();
+            try {
+                while (batch.size() < room && !spillLog.isEmpty()) {
+                    batch.add(spillLog.poll());
+                }
+            } catch (IOException e) {
+                discarded = spillLog.size();
+                System.err.println("Error reading spilled tasks, discarding " + discarded + 
+                                 " tasks: " + e.getMessage());
+                spillLog.discard();
+            } finally {
+                spillLock.unlock();
+            }
+        } finally {
+            lock.lock();
+            refilling = false;
+        }
+        
+        for (Task spilled : batch) {
+            queue.offer(spilled);
+        }
+        spilledCount -= batch.size() + discarded;
+        
+        if (batch.isEmpty() && discarded == 0) {
+            return false;
+        }
+        notEmpty.signalAll();
+        return true;
+    }
+    
     /**
      * Check if queue is empty
      * @return true if empty, false otherwise
@@ -90,7 +234,7 @@ public class SharedQueue {
     public boolean isEmpty() {
         lock.lock();
         try {
-            return queue.isEmpty();
+            return queue.isEmpty() && spilledCount == 0;
         } finally {
             lock.unlock();
         }
@@ -103,7 +247,8 @@ public class SharedQueue {
     public int size() {
         lock.lock();
         try {
-            return queue.size();
+            long total = queue.size() + spilledCount;
+            return (int) Math.min(total, Integer.MAX_VALUE);
         } finally {
             lock.unlock();
         }
@@ -123,6 +268,58 @@ public class SharedQueue {
         }
     }
     
+    /**
+     * Get the number of tasks currently spilled to disk, including any
+     * still being written
+     * @return Number of spilled tasks
+     */
+    public long getSpilledCount() {
+        lock.lock();
+        try {
+            return spilledCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Check if overflow tasks spill to disk instead of blocking producers
+     * @return true if spilling is enabled, false otherwise
+     */
+    public boolean isSpillEnabled() {
+        return spillLog != null;
+    }
+    
+    /**
+     * Release resources held by the queue, deleting any spill segments.
+     * Tasks still being spilled are rejected. Call once all workers have stopped.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (spillLog != null) {
+                spillLock.lock();
+                try {
+                    // In-flight appends keep their count and remove it when they fail
+                    spilledCount -= spillLog.size();
+                    spillLog.close();
+                } finally {
+                    spillLock.unlock();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Check if task payloads are stored off-heap
+     * @return true if off-heap, false otherwise
+     */
+    public boolean isOffHeap() {
+        return queue instanceof OffHeapTaskQueue;
+    }
+    
     /**
      * Check if queue is shutdown
      * @return true if shutdown, false otherwise
@@ -0,0 +1,243 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Append-only, segmented on-disk FIFO log of tasks. Tasks are appended to the
+ * tail segment through a buffered stream and read back sequentially from the
+ * head segment. A segment file is deleted as soon as every task in it has been
+ * read. If an append fails the tail segment is sealed, so a partially written
+ * record is never followed by more records and is never read back. Not
+ * thread-safe; {@link SharedQueue} guards it with a dedicated lock.
+ */
+public class SpillLog {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NULL_LENGTH = -1;
+
+    private final File directory;
+    private final long segmentBytes;
+    private final Deque<Segment> segments;
+    private long nextSegmentId = 0;
+    private long size = 0;
+    private boolean closed = false;
+
+    public SpillLog(File directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public SpillLog(File directory, long segmentBytes) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Spill directory cannot be null");
+        }
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.segments = new ArrayDeque<>();
+    }
+
+    /**
+     * Append a task to the tail of the log
+     * @param task The task to append
+     * @throws IOException if the task cannot be written or the log is closed
+     */
+    public void append(Task task) throws IOException {
+        if (closed) {
+            throw new IOException("Spill log is closed");
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.out == null || tail.bytesWritten >= segmentBytes) {
+            if (tail != null && tail.out != null) {
+                tail.closeWriter();
+            }
+            tail = openSegment();
+        }
+
+        String data = task.getData();
+        byte[] bytes = data == null ? new byte[0] : data.getBytes(StandardCharsets.UTF_8);
+        try {
+            tail.out.writeInt(task.getId());
+            tail.out.writeLong(task.getTimestamp());
+            tail.out.writeInt(data == null ? NULL_LENGTH : bytes.length);
+            tail.out.write(bytes);
+        } catch (IOException e) {
+            sealTail(tail);
+            throw e;
+        }
+
+        tail.maxLength = Math.max(tail.maxLength, bytes.length);
+        tail.bytesWritten += Integer.BYTES + Long.BYTES + Integer.BYTES + bytes.length;
+        tail.written++;
+        tail.dirty = true;
+        size++;
+    }
+
+    /**
+     * Remove and return the task at the head of the log
+     * @return The task, or null if the log is empty
+     * @throws IOException if the task cannot be read
+     */
+    public Task poll() throws IOException {
+        if (size == 0) {
+            return null;
+        }
+
+        Segment head = segments.peekFirst();
+        if (head.out != null && head.dirty) {
+            // Head is also the segment being written; make buffered records visible
+            head.out.flush();
+            head.dirty = false;
+        }
+        if (head.in == null) {
+            head.in = new DataInputStream(new BufferedInputStream(new FileInputStream(head.file), BUFFER_SIZE));
+        }
+
+        int id = head.in.readInt();
+        long timestamp = head.in.readLong();
+        int length = head.in.readInt();
+        if (length < NULL_LENGTH || length > head.maxLength) {
+            throw new IOException("Corrupt record in spill segment " + head.file + ": length " + length);
+        }
+        String data = null;
+        if (length != NULL_LENGTH) {
+            byte[] bytes = new byte[length];
+            head.in.readFully(bytes);
+            data = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        head.read++;
+        size--;
+        if (head.read == head.written) {
+            segments.pollFirst();
+            head.delete();
+        }
+
+        return new Task(id, data, timestamp);
+    }
+
+    /**
+     * Get the number of tasks in the log
+     * @return Number of spilled tasks
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Check if the log is empty
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of segment files currently on disk
+     * @return Number of segments
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Delete all segments, discarding any unread tasks. The log stays open
+     * and later appends start a new segment.
+     */
+    public void discard() {
+        while (!segments.isEmpty()) {
+            segments.pollFirst().delete();
+        }
+        size = 0;
+    }
+
+    /**
+     * Discard all segments and close the log; any later append fails
+     */
+    public void close() {
+        discard();
+        closed = true;
+    }
+
+    /**
+     * Stop appending to the tail segment after a failed write. The next append
+     * starts a new segment; readers stop at the last complete record.
+     */
+    private void sealTail(Segment tail) {
+        try {
+            tail.closeWriter();
+        } catch (IOException e) {
+            System.err.println("Error sealing spill segment " + tail.file + ": " + e.getMessage());
+        }
+        if (tail.written == 0) {
+            segments.remove(tail);
+            tail.delete();
+        }
+    }
+
+    private Segment openSegment() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spill directory: " + directory);
+        }
+
+        File file = File.createTempFile(String.format("spill-%06d-", nextSegmentId++), ".log", directory);
+        Segment segment = new Segment(file);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * A single segment file with its writer and reader state
+     */
+    private static class Segment {
+        private final File file;
+        private DataOutputStream out;
+        private DataInputStream in;
+        private long bytesWritten = 0;
+        private long written = 0;
+        private long read = 0;
+        private int maxLength = 0;
+        private boolean dirty = false;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        }
+
+        void closeWriter() throws IOException {
+            if (out != null) {
+                try {
+                    out.close();
+                } finally {
+                    out = null;
+                    dirty = false;
+                }
+            }
+        }
+
+        void delete() {
+            try {
+                closeWriter();
+                if (in != null) {
+                    in.close();
+                    in = null;
+                }
+            } catch (IOException e) {
+                System.err.println("Error closing spill segment " + file + ": " + e.getMessage());
+            }
+            if (file.exists() && !file.delete()) {
+                System.err.println("Unable to delete spill segment: " + file);
+            }
+        }
+    }
+}
@@ -12,6 +12,12 @@ public class Task {
         this.timestamp = System.currentTimeMillis();
     }
     
+    public Task(int id, String data, long timestamp) {
+        this.id = id;
+        this.data = data;
+        this.timestamp = timestamp;
+    }
+    
     public int getId() {
         return id;
     }